@@ -80,6 +80,35 @@ public class JSONArrayTest {
         }
     }
 
+    /**
+     * Element boundaries in a JSONArray are only the commas outside of
+     * strings and nested values. Brackets, braces, commas and escaped
+     * quotes inside strings must not split an element, and the permissive
+     * empty and trailing elements must be kept as they are today.
+     */
+    @Test
+    public void elementBoundaries() {
+        String str =
+            "["+
+                "\"a,b\","+
+                "\"[{\\\"}]\","+
+                "\"back\\\\\","+
+                "{\"key\":[1,{\"x\":\"]\"}]},"+
+                "[[],[,]],"+
+                ","+
+                "42,"+
+            "]";
+        JSONArray jsonArray = new JSONArray(str);
+        assertEquals("expected 7 elements", 7, jsonArray.length());
+        assertEquals("a,b", jsonArray.get(0));
+        assertEquals("[{\"}]", jsonArray.get(1));
+        assertEquals("back\\", jsonArray.get(2));
+        assertEquals("]", jsonArray.query("/3/key/1/x"));
+        assertEquals("[[],[null]]", jsonArray.get(4).toString());
+        assertEquals(JSONObject.NULL, jsonArray.get(5));
+        assertEquals(42, jsonArray.get(6));
+    }
+
     /**
      * Attempt to create a JSONArray with a string as object that is
      * not a JSON array doc.
@@ -998,4 +1027,36 @@ public class JSONArrayTest {
         assertTrue("Removing an entry should succeed", list.remove(2) != null);
         assertTrue("List should have 2 elements", list.size() == 2);
     }
+
+    /**
+     * Contrast toList() with iterating the JSONArray directly. toList()
+     * converts nested values up front and maps JSONObject.NULL to null, while
+     * the iterator hands back the stored values unconverted and sees changes
+     * made after it was created.
+     */
+    @Test
+    public void toListVersusIterator() {
+        JSONArray jsonArray = new JSONArray("[null,{\"key1\":null},[1]]");
+
+        List<?> list = jsonArray.toList();
+        assertNull("toList() should map JSONObject.NULL to null", list.get(0));
+        assertTrue("expected a Map", list.get(1) instanceof Map);
+        assertTrue("expected a List", list.get(2) instanceof List);
+        Map<?,?> key1Map = (Map<?,?>)list.get(1);
+        assertTrue("nested JSONObject.NULL key should be kept", key1Map.containsKey("key1"));
+        assertNull("nested JSONObject.NULL should be null", key1Map.get("key1"));
+
+        Iterator<Object> it = jsonArray.iterator();
+        assertEquals(JSONObject.NULL, it.next());
+        assertTrue("expected a JSONObject", it.next() instanceof JSONObject);
+        assertTrue("expected a JSONArray", it.next() instanceof JSONArray);
+
+        // the stored values are live, the converted list is not
+        jsonArray.getJSONObject(1).put("key2", "val2");
+        it = jsonArray.iterator();
+        it.next();
+        assertEquals("val2", ((JSONObject)it.next()).get("key2"));
+        assertTrue("converted map should not see the new key",
+                !((Map<?,?>)list.get(1)).containsKey("key2"));
+    }
 }
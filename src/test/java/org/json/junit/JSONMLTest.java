@@ -746,6 +746,32 @@ public class JSONMLTest {
         assertEquals(revertedXml, originalXml);
     }
     
+    /**
+     * Mixed content keeps its children in document order in both the
+     * JSONArray and the JSONObject forms. Text between elements is trimmed,
+     * so the whitespace around it does not come back.
+     */
+    @Test
+    public void testToJSONArray_reversibility4() {
+        final String originalXml = "<p>Hello <b>bold</b> and <i>italic<u>under</u></i>text.<br/></p>";
+        final String expectedXml = "<p>Hello<b>bold</b>and<i>italic<u>under</u></i>text.<br/></p>";
+        final String expectedJsonString = "[\"p\",\"Hello\",[\"b\",\"bold\"],\"and\",[\"i\",\"italic\",[\"u\",\"under\"]],\"text.\",[\"br\"]]";
+
+        final JSONArray jsonArray = JSONML.toJSONArray(originalXml, true);
+        assertEquals(expectedJsonString, jsonArray.toString());
+        assertEquals(expectedXml, JSONML.toString(jsonArray));
+
+        final JSONObject jsonObject = JSONML.toJSONObject(originalXml, true);
+        final JSONArray childNodes = jsonObject.getJSONArray("childNodes");
+        assertEquals(6, childNodes.length());
+        assertEquals("Hello", childNodes.get(0));
+        assertEquals("b", childNodes.getJSONObject(1).get("tagName"));
+        assertEquals("and", childNodes.get(2));
+        assertEquals("under", childNodes.getJSONObject(3).query("/childNodes/1/childNodes/0"));
+        assertEquals("text.", childNodes.get(4));
+        assertEquals(expectedXml, JSONML.toString(jsonObject));
+    }
+
     /**
      * JSON string cannot be reverted to original xml. See test result in
      * comment below.
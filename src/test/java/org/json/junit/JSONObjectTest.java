@@ -1,5 +1,6 @@
 package org.json.junit;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
@@ -145,6 +146,32 @@ public class JSONObjectTest {
         assertTrue("expected \"doubleKey\":-23.45e67", Double.valueOf("-23.45e67").equals(jsonObjectByName.query("/doubleKey")));
     }
 
+    /**
+     * A JSONObject created from another JSONObject plus a list of names is a
+     * shallow copy. Top level changes to the copy must not show up in the
+     * original, while nested values are shared rather than copied.
+     */
+    @Test
+    public void jsonObjectByNamesIsShallowCopy() {
+        String str = "{\"stringKey\":\"hello world!\",\"objectKey\":{\"a\":1},\"arrayKey\":[1,2]}";
+        JSONObject jsonObject = new JSONObject(str);
+        JSONObject copy = new JSONObject(jsonObject, JSONObject.getNames(jsonObject));
+
+        copy.put("stringKey", "goodbye world!");
+        copy.put("newKey", true);
+        assertEquals("hello world!", jsonObject.get("stringKey"));
+        assertFalse("original should not see new keys", jsonObject.has("newKey"));
+        assertEquals("goodbye world!", copy.get("stringKey"));
+
+        // nested values are the same instances in both objects
+        assertTrue("nested object should be shared",
+                jsonObject.get("objectKey") == copy.get("objectKey"));
+        assertTrue("nested array should be shared",
+                jsonObject.get("arrayKey") == copy.get("arrayKey"));
+        copy.getJSONObject("objectKey").put("b", 2);
+        assertEquals(2, jsonObject.query("/objectKey/b"));
+    }
+
     /**
      * JSONObjects can be built from a Map<String, Object>. 
      * In this test the map is null.
@@ -183,6 +210,41 @@ public class JSONObjectTest {
         assertTrue("expected \"doubleKey\":-23.45e67", Double.valueOf("-23.45e67").equals(jsonObject.query("/doubleKey")));
     }
 
+    /**
+     * JSONObjects built from a Map and JSONArrays built from a Collection
+     * copy their source. Nested maps and collections are wrapped when the
+     * object is constructed, and later changes to the source are not seen.
+     */
+    @Test
+    public void jsonObjectByMapCopiesSource() {
+        List<Object> list = new ArrayList<Object>();
+        list.add("value1");
+        Map<String, Object> nestedMap = new HashMap<String, Object>();
+        nestedMap.put("nestedKey", "nestedValue");
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("listKey", list);
+        map.put("mapKey", nestedMap);
+        map.put("stringKey", "hello world!");
+
+        JSONObject jsonObject = new JSONObject(map);
+        JSONArray jsonArray = new JSONArray(list);
+        assertTrue("nested list should be wrapped",
+                jsonObject.get("listKey") instanceof JSONArray);
+        assertTrue("nested map should be wrapped",
+                jsonObject.get("mapKey") instanceof JSONObject);
+
+        map.put("stringKey", "goodbye world!");
+        map.put("newKey", "newValue");
+        nestedMap.put("nestedKey", "changed");
+        list.add("value2");
+
+        assertEquals("hello world!", jsonObject.get("stringKey"));
+        assertFalse("source map changes should not be seen", jsonObject.has("newKey"));
+        assertEquals("nestedValue", jsonObject.query("/mapKey/nestedKey"));
+        assertEquals(1, jsonObject.getJSONArray("listKey").length());
+        assertEquals(1, jsonArray.length());
+    }
+
     /**
      * Verifies that the constructor has backwards compatability with RAW types pre-java5.
      */
@@ -578,6 +640,47 @@ public class JSONObjectTest {
         assertTrue("expected -23.45e7", Double.valueOf(-23.45e7).equals(jsonObject.query("/myArray/5")));
     }
 
+    /**
+     * Exercise the read-modify-write behavior of accumulate(), append() and
+     * increment(). Once a key holds a JSONArray, further values are added to
+     * that same array instance rather than to a copy.
+     */
+    @SuppressWarnings("boxing")
+    @Test
+    public void jsonObjectAccumulateAppendInPlace() {
+        JSONObject jsonObject = new JSONObject();
+
+        // a single accumulated value is stored as is
+        jsonObject.accumulate("accumulateKey", "first");
+        assertEquals("first", jsonObject.get("accumulateKey"));
+        jsonObject.accumulate("accumulateKey", "second");
+        JSONArray accumulated = jsonObject.getJSONArray("accumulateKey");
+        jsonObject.accumulate("accumulateKey", "third");
+        assertTrue("expected the same array instance",
+                accumulated == jsonObject.get("accumulateKey"));
+        assertEquals("[\"first\",\"second\",\"third\"]", accumulated.toString());
+
+        // append always stores a JSONArray, even for the first value
+        jsonObject.append("appendKey", 1);
+        JSONArray appended = jsonObject.getJSONArray("appendKey");
+        jsonObject.append("appendKey", 2);
+        assertTrue("expected the same array instance",
+                appended == jsonObject.get("appendKey"));
+        assertEquals("[1,2]", appended.toString());
+
+        // append and increment refuse to change the type of an existing value
+        jsonObject.put("stringKey", "hello world!");
+        try {
+            jsonObject.append("stringKey", 1);
+            fail("Expected an exception");
+        } catch (JSONException ignored) {}
+        try {
+            jsonObject.increment("stringKey");
+            fail("Expected an exception");
+        } catch (JSONException ignored) {}
+        assertEquals("hello world!", jsonObject.get("stringKey"));
+    }
+
     /**
      * Exercise the JSONObject doubleToString() method
      */
@@ -1577,6 +1680,39 @@ public class JSONObjectTest {
         assertTrue("expected myVal4", "myVal4".equals(jsonObject.query("/objectKey/myKey4")));
     }
 
+    /**
+     * Exercise repeated JSONObject toString() calls. Every call must produce
+     * a complete, independent result, and a failed call must not leave any
+     * partial output behind for the next one.
+     */
+    @Test
+    public void jsonObjectToStringRepeated() {
+        JSONObject small = new JSONObject("{\"key\":\"value\"}");
+        JSONObject large = new JSONObject();
+        for (int i = 0; i < 1000; i++) {
+            large.put("key" + i, "value" + i);
+        }
+        String largeStr = large.toString();
+        String largeIndentStr = large.toString(2);
+        assertTrue("expected a complete result", large.similar(new JSONObject(largeStr)));
+        assertTrue("expected a complete result", large.similar(new JSONObject(largeIndentStr)));
+        assertEquals(largeStr, large.toString());
+        assertEquals(largeIndentStr, large.toString(2));
+        assertEquals("{\"key\":\"value\"}", small.toString());
+
+        JSONObject broken = new JSONObject().put("someKey", new BrokenToString());
+        assertNull("toString() should return null on failure", broken.toString());
+        try {
+            broken.toString(2);
+            fail("Expected an exception");
+        } catch (JSONException ignored) {}
+
+        assertEquals("{\"key\":\"value\"}", small.toString());
+        assertEquals("{\"key\": \"value\"}", small.toString(2));
+        assertEquals(largeStr, large.toString());
+        assertEquals(largeIndentStr, large.toString(2));
+    }
+
     /**
      * Exercise JSONObject toString() method with various indent levels.
      */
@@ -1648,6 +1784,41 @@ public class JSONObjectTest {
         assertEquals("toString(2)","{\"TABLE\": {\"yhoo\": {}}}", jo.toString(2));
     }
 
+    /**
+     * Exercise the indentation rules of write(Writer, int, int) that any
+     * streaming pretty printer has to reproduce. The opening bracket is not
+     * indented, nested lines start at indent plus indentFactor, empty values
+     * stay compact and single-key objects stay on one line.
+     */
+    @Test
+    public void jsonObjectWriteIndentRules() throws IOException {
+        JSONObject jsonObject = new JSONObject("{\"a\":[1,[]],\"b\":{\"c\":{}}}");
+        String expectedStr =
+                "{\n" +
+                "     \"a\": [\n" +
+                "       1,\n" +
+                "       []\n" +
+                "     ],\n" +
+                "     \"b\": {\"c\": {}}\n" +
+                "   }";
+        StringWriter stringWriter = new StringWriter();
+        try {
+            assertEquals(expectedStr, jsonObject.write(stringWriter, 2, 3).toString());
+        } finally {
+            stringWriter.close();
+        }
+
+        stringWriter = new StringWriter();
+        try {
+            assertEquals("write(Writer, 2, 0) should match toString(2)",
+                    jsonObject.toString(2), jsonObject.write(stringWriter, 2, 0).toString());
+        } finally {
+            stringWriter.close();
+        }
+        assertEquals("[]", new JSONArray().toString(2));
+        assertEquals("[{}]", new JSONArray().put(new JSONObject()).toString(2));
+    }
+
     /**
      * Explores how JSONObject handles maps. Insert a string/string map
      * as a value in a JSONObject. It will remain a map. Convert the 
@@ -2213,6 +2384,30 @@ public class JSONObjectTest {
                 "\"\u1234\\u0088\"".equals(quotedStr));
     }
 
+    /**
+     * Keys are written exactly as quote() encodes them, no matter how many
+     * objects share the same key.
+     */
+    @Test
+    public void jsonObjectQuoteKeys() {
+        String key = "a\"b</c>\u2028";
+        String quotedKey = JSONObject.quote(key);
+        assertEquals("\"a\\\"b<\\/c>\\u2028\"", quotedKey);
+
+        JSONArray records = new JSONArray();
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < 3; i++) {
+            records.put(new JSONObject().put(key, i));
+            if (i > 0) {
+                expected.append(',');
+            }
+            expected.append('{').append(quotedKey).append(':').append(i).append('}');
+        }
+        expected.append(']');
+        assertEquals(expected.toString(), records.toString());
+        assertEquals("repeated output should not change", expected.toString(), records.toString());
+    }
+
     /**
      * Confirm behavior when JSONObject stringToValue() is called for an
      * empty string
@@ -2253,6 +2448,90 @@ public class JSONObjectTest {
         }
     }
     
+    /**
+     * Compact output can be used as one line of newline delimited JSON.
+     * Line terminators inside keys and values must be escaped by write(),
+     * and each line must parse back to the same object.
+     */
+    @Test
+    public void writeLineDelimited() throws IOException {
+        JSONObject first = new JSONObject();
+        first.put("key\n1", "line1\nline2\r\n");
+        first.put("key2", new JSONArray().put("sep\u2028").put("par\u2029"));
+        JSONObject second = new JSONObject("{\"key3\":[]}");
+
+        StringWriter stringWriter = new StringWriter();
+        try {
+            first.write(stringWriter).write('\n');
+            second.write(stringWriter).write('\n');
+            String[] lines = stringWriter.toString().split("\n", -1);
+            assertEquals("expected 2 lines and a trailing empty one", 3, lines.length);
+            for (String line : new String[] {lines[0], lines[1]}) {
+                assertFalse("unexpected line terminator in " + line,
+                        line.matches("(?s).*[\r\u2028\u2029].*"));
+            }
+            assertTrue("first line should parse back", first.similar(new JSONObject(lines[0])));
+            assertTrue("second line should parse back", second.similar(new JSONObject(lines[1])));
+            assertEquals("", lines[2]);
+
+            // a corrupted record is reported relative to its own line,
+            // not to its offset in the whole output
+            String corrupted = lines[1].replace("[]", "]");
+            try {
+                new JSONObject(corrupted);
+                fail("Expected an exception");
+            } catch (JSONException e) {
+                assertEquals("Missing value at 8 [character 9 line 1]", e.getMessage());
+            }
+        } finally {
+            stringWriter.close();
+        }
+    }
+
+    /**
+     * Exercise which characters write() passes through unchanged and which
+     * it escapes. C1 controls and the U+2000 to U+20FF block are written as
+     * unicode escapes, other non-ASCII characters are written as is.
+     */
+    @Test
+    public void writeNonAsciiCharacters() throws IOException {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("ascii", "plain text");
+        jsonObject.put("latin", "caf\u00e9");
+        jsonObject.put("c1", "\u0085");
+        jsonObject.put("euro", "\u20ac");
+        jsonObject.put("emoji", "\ud83d\ude00");
+
+        StringWriter stringWriter = new StringWriter();
+        try {
+            jsonObject.write(stringWriter);
+        } finally {
+            stringWriter.close();
+        }
+        String actualStr = stringWriter.toString();
+        assertTrue(actualStr, actualStr.contains("\"ascii\":\"plain text\""));
+        assertTrue(actualStr, actualStr.contains("\"latin\":\"caf\u00e9\""));
+        assertTrue(actualStr, actualStr.contains("\"c1\":\"\\u0085\""));
+        assertTrue(actualStr, actualStr.contains("\"euro\":\"\\u20ac\""));
+        assertTrue(actualStr, actualStr.contains("\"emoji\":\"\ud83d\ude00\""));
+
+        // the exact UTF-8 bytes a byte oriented writer would have to produce
+        stringWriter = new StringWriter();
+        try {
+            new JSONObject().put("k", "\u00e9\u20ac\ud83d\ude00").write(stringWriter);
+        } finally {
+            stringWriter.close();
+        }
+        byte[] expectedBytes = {
+            '{', '"', 'k', '"', ':', '"',
+            (byte)0xc3, (byte)0xa9,
+            '\\', 'u', '2', '0', 'a', 'c',
+            (byte)0xf0, (byte)0x9f, (byte)0x98, (byte)0x80,
+            '"', '}'
+        };
+        assertArrayEquals(expectedBytes, stringWriter.toString().getBytes("UTF-8"));
+    }
+
     /**
      * Confirms that exceptions thrown when writing values are wrapped properly.
      */
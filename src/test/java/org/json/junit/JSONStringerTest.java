@@ -217,6 +217,53 @@ public class JSONStringerTest {
         }
     }
 
+    /**
+     * Nest arrays right up to the implementation max nesting depth,
+     * then one level further.
+     * Expects a JSONException only for the last level.
+     */
+    @Test
+    public void maxNestDepth() {
+        JSONStringer jsonStringer = new JSONStringer();
+        for (int i = 0; i < 200; i++) {
+            jsonStringer.array();
+        }
+        try {
+            jsonStringer.array();
+            assertTrue("Expected an exception", false);
+        } catch (JSONException e) {
+            assertTrue("Expected an exception message",
+                    "Nesting too deep.".
+                    equals(e.getMessage()));
+        }
+        for (int i = 0; i < 200; i++) {
+            jsonStringer.endArray();
+        }
+        String str = jsonStringer.toString();
+        assertEquals(400, str.length());
+        assertTrue("expected balanced output", str.startsWith("[[") && str.endsWith("]]"));
+    }
+
+    /**
+     * Duplicate keys are only detected within the same object.
+     * Expects a JSONException for the duplicate.
+     */
+    @Test
+    public void duplicateKeyException() {
+        JSONStringer jsonStringer = new JSONStringer();
+        jsonStringer.object().
+            key("k").object().key("k").value(1).endObject().
+            key("other").object().key("k").value(2).endObject();
+        try {
+            jsonStringer.key("k");
+            assertTrue("Expected an exception", false);
+        } catch (JSONException e) {
+            assertTrue("Expected an exception message",
+                    "Duplicate key \"k\"".
+                    equals(e.getMessage()));
+        }
+    }
+
     /**
      * Build a JSON doc using JSONString API calls,
      * then convert to JSONObject
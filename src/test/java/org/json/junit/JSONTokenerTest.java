@@ -7,12 +7,18 @@ import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.junit.Test;
 
@@ -198,4 +204,147 @@ public class JSONTokenerTest {
         assertEquals(0, t2.next());
         assertFalse(t2.more());
    }
+
+    /**
+     * Verify the character classes used by nextClean() and nextString().
+     * nextClean() treats every character up to and including the space as
+     * whitespace, and nextString() resolves escapes until the closing quote.
+     */
+    @Test
+    public void testNextCleanAndNextString() {
+        final JSONTokener tokener = new JSONTokener(
+                " \t\r\n\u0001{\"a\\\"b\\\\c\\/d\\u0041\\t\"\u007f:");
+        assertEquals('{', tokener.nextClean());
+        assertEquals('"', tokener.nextClean());
+        assertEquals("a\"b\\c/dA\t", tokener.nextString('"'));
+        assertEquals('\u007f', tokener.nextClean());
+        assertEquals(':', tokener.nextClean());
+        assertEquals(0, tokener.nextClean());
+
+        try {
+            new JSONTokener("abc").nextString('"');
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("Unterminated string at 3 [character 4 line 1]", e.getMessage());
+        }
+        try {
+            new JSONTokener("\\q\"").nextString('"');
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("Illegal escape. at 2 [character 3 line 1]", e.getMessage());
+        }
+    }
+
+    /**
+     * Verify that a single tokener can be handed to the JSONObject and
+     * JSONArray constructors over and over to read a stream of messages.
+     * Each constructor stops right after the closing bracket of its value.
+     *
+     * @throws IOException thrown if something unexpected happens.
+     */
+    @Test
+    public void testTokenerReuseAcrossMessages() throws IOException {
+        final String messages = "{\"id\":1}\n{\"id\":2,\"tags\":[\"a\"]}\r\n[3]\n";
+        try(Reader reader = new StringReader(messages)) {
+            final JSONTokener tokener = new JSONTokener(reader);
+            JSONObject first = new JSONObject(tokener);
+            assertEquals(1, first.getInt("id"));
+            assertEquals(" at 8 [character 9 line 1]", tokener.toString());
+
+            JSONObject second = new JSONObject(tokener);
+            assertEquals(2, second.getInt("id"));
+            assertEquals("a", second.getJSONArray("tags").getString(0));
+
+            JSONArray third = new JSONArray(tokener);
+            assertEquals(3, third.getInt(0));
+
+            assertEquals(0, tokener.nextClean());
+            assertTrue(tokener.end());
+        }
+    }
+
+    /**
+     * Verify that nextValue() can read back to back values that have no
+     * delimiter between them, using nextClean() and back() to look for the
+     * start of the next value.
+     *
+     * @throws IOException thrown if something unexpected happens.
+     */
+    @Test
+    public void testNextValueConcatenatedDocuments() throws IOException {
+        final String documents = "{\"a\":1}{\"b\":2}[3]\"four\"5{\"c\":6} \n";
+        final List<Object> values = new ArrayList<Object>();
+        try(Reader reader = new StringReader(documents)) {
+            final JSONTokener tokener = new JSONTokener(reader);
+            while (tokener.nextClean() != 0) {
+                tokener.back();
+                values.add(tokener.nextValue());
+            }
+            assertTrue(tokener.end());
+        }
+        assertEquals(6, values.size());
+        assertEquals(1, ((JSONObject)values.get(0)).getInt("a"));
+        assertEquals(2, ((JSONObject)values.get(1)).getInt("b"));
+        assertEquals(3, ((JSONArray)values.get(2)).getInt(0));
+        assertEquals("four", values.get(3));
+        assertEquals(5, values.get(4));
+        assertEquals(6, ((JSONObject)values.get(5)).getInt("c"));
+    }
+
+    /**
+     * Verify that input arriving in arbitrarily small pieces, down to a
+     * single byte per read and multi-byte characters split across reads,
+     * parses to exactly the same value as the whole string.
+     *
+     * @throws IOException thrown if something unexpected happens.
+     */
+    @Test
+    public void testParseFromOneByteReads() throws IOException {
+        final String json = "{\"key\u00e9\":[1,2.5,\"\u20ac\\u00e9\",true,null,{\"n\":{}}]}";
+        final JSONObject expected = new JSONObject(json);
+        final byte[] bytes = json.getBytes("UTF-8");
+        final InputStream trickle = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        try(Reader reader = new InputStreamReader(trickle, "UTF-8")) {
+            final JSONObject actual = new JSONObject(new JSONTokener(reader));
+            assertTrue("expected " + expected + " but found " + actual,
+                    expected.similar(actual));
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    /**
+     * Verify that the elements of a large array can be read one at a time
+     * with nextValue(), and that the tokener only advances as far as the
+     * element that was asked for.
+     *
+     * @throws IOException thrown if something unexpected happens.
+     */
+    @Test
+    public void testReadArrayElementsOnDemand() throws IOException {
+        final String array = "[{\"id\":1}, {\"id\":2} ,{\"id\":3}]";
+        try(Reader reader = new StringReader(array)) {
+            final JSONTokener tokener = new JSONTokener(reader);
+            assertEquals('[', tokener.nextClean());
+
+            JSONObject element = (JSONObject)tokener.nextValue();
+            assertEquals(1, element.getInt("id"));
+            assertEquals("should stop after the first element",
+                    " at 9 [character 10 line 1]", tokener.toString());
+
+            int id = 1;
+            char c;
+            while ((c = tokener.nextClean()) == ',') {
+                element = (JSONObject)tokener.nextValue();
+                assertEquals(++id, element.getInt("id"));
+            }
+            assertEquals(']', c);
+            assertEquals(3, id);
+            assertEquals(0, tokener.nextClean());
+        }
+    }
 }
@@ -18,7 +18,8 @@ import org.junit.runners.Suite;
    EnumTest.class,
    JSONPointerTest.class,
    JSONStringTest.class,
-   JSONTokenerTest.class
+   JSONTokenerTest.class,
+   XMLTokenerTest.class
 })
 public class JunitTestSuite {
 }
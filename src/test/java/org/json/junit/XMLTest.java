@@ -2,6 +2,7 @@ package org.json.junit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -183,6 +184,43 @@ public class XMLTest {
         }
     }
 
+    /**
+     * Structural errors are reported as a JSONException that carries the
+     * position where parsing stopped. Deep nesting and repeated attributes
+     * are accepted without any limit today.
+     */
+    @Test
+    public void shouldHandleStructuralErrorsAndDepth() {
+        String[] xmlStrs = {"<a><b>text</b>", "<a></b>", "<a><b>"};
+        String[] expectedMessages = {
+            "Unclosed tag a at 14 [character 15 line 1]",
+            "Mismatched a and b at 6 [character 7 line 1]",
+            "Unclosed tag b at 6 [character 7 line 1]"
+        };
+        for (int i = 0; i < xmlStrs.length; i++) {
+            try {
+                XML.toJSONObject(xmlStrs[i]);
+                fail("Expecting a JSONException");
+            } catch (JSONException e) {
+                assertEquals("Expecting an exception message",
+                        expectedMessages[i], e.getMessage());
+            }
+        }
+
+        StringBuilder xmlStr = new StringBuilder();
+        StringBuilder pointer = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            xmlStr.insert(0, "<n>").append("</n>");
+            pointer.append("/n");
+        }
+        xmlStr.insert(1500, "deep");
+        assertEquals("deep", XML.toJSONObject(xmlStr.toString()).query(pointer.toString()));
+
+        JSONObject jsonObject = XML.toJSONObject("<a x=\"1\" x=\"2\" y=3/>");
+        assertEquals("[1,2]", jsonObject.getJSONObject("a").get("x").toString());
+        assertEquals(3, jsonObject.query("/a/y"));
+    }
+
     /**
      * Null JSONObject in XML.toString()
      */
@@ -265,6 +303,98 @@ public class XMLTest {
         compareFileToJSONObject(xmlStr, expectedStr);
     }
 
+    /**
+     * Repeated elements under the root element are collected into a JSONArray
+     * in document order. Each entry has the same shape as the JSONObject
+     * produced when that element is converted on its own.
+     */
+    @Test
+    public void shouldHandleRepeatedRecords() {
+        String[] records = {
+            "<record id=\"1\"><name>first</name></record>",
+            "<record id=\"2\"><name>second</name><tag>a</tag><tag>b</tag></record>",
+            "<record id=\"3\"/>"
+        };
+        StringBuilder xmlStr = new StringBuilder("<records>\n");
+        for (String record : records) {
+            xmlStr.append("  ").append(record).append('\n');
+        }
+        xmlStr.append("</records>");
+
+        JSONObject jsonObject = XML.toJSONObject(xmlStr.toString());
+        JSONArray jsonArray = jsonObject.getJSONObject("records").getJSONArray("record");
+        assertEquals(records.length, jsonArray.length());
+        for (int i = 0; i < records.length; i++) {
+            JSONObject expectedJsonObject = XML.toJSONObject(records[i]).getJSONObject("record");
+            Util.compareActualVsExpectedJsonObjects(jsonArray.getJSONObject(i), expectedJsonObject);
+        }
+
+        // a single record is not wrapped in an array
+        jsonObject = XML.toJSONObject("<records>" + records[0] + "</records>");
+        assertTrue("expected a JSONObject",
+                jsonObject.getJSONObject("records").get("record") instanceof JSONObject);
+    }
+
+    /**
+     * Converting top level siblings one chunk at a time and accumulating the
+     * results gives the same JSONObject as converting the whole document.
+     * Siblings with different names are grouped by name, so their
+     * interleaving in the document is not kept.
+     */
+    @Test
+    public void shouldMatchChunkedConversionOfSiblings() {
+        String[] chunks = {
+            "<row id=\"1\"><v>01</v></row><row id=\"2\"><v>2.5</v></row>",
+            "<other>x</other>",
+            "<row id=\"3\"><v>true</v></row>"
+        };
+        StringBuilder xmlStr = new StringBuilder();
+        JSONObject chunked = new JSONObject();
+        for (String chunk : chunks) {
+            xmlStr.append(chunk);
+            JSONObject part = XML.toJSONObject(chunk);
+            for (String key : part.keySet()) {
+                Object value = part.get(key);
+                if (value instanceof JSONArray) {
+                    for (Object element : (JSONArray)value) {
+                        chunked.accumulate(key, element);
+                    }
+                } else {
+                    chunked.accumulate(key, value);
+                }
+            }
+        }
+        JSONObject whole = XML.toJSONObject(xmlStr.toString());
+        assertTrue("expected " + whole + " but found " + chunked, whole.similar(chunked));
+        assertEquals(3, whole.getJSONArray("row").length());
+        assertEquals(3, whole.query("/row/2/id"));
+        assertEquals("x", whole.get("other"));
+    }
+
+    /**
+     * Query values out of converted XML with JSON pointers. Attributes and
+     * child elements both become keys, and repeated elements add an array
+     * index to the path, so the pointer to a value depends on how many
+     * siblings the element has.
+     */
+    @Test
+    public void shouldQueryConvertedXML() {
+        String xmlStr =
+            "<catalog>"+
+                "<item sku=\"a1\"><price>9.5</price><name>first</name></item>"+
+                "<item sku=\"b2\"><price currency=\"EUR\">12</price></item>"+
+                "<owner><name>shop</name></owner>"+
+            "</catalog>";
+        JSONObject jsonObject = XML.toJSONObject(xmlStr);
+        assertEquals(Double.valueOf(9.5), jsonObject.query("/catalog/item/0/price"));
+        assertEquals("a1", jsonObject.query("/catalog/item/0/sku"));
+        assertEquals(12, jsonObject.query("/catalog/item/1/price/content"));
+        assertEquals("EUR", jsonObject.query("/catalog/item/1/price/currency"));
+        assertEquals("shop", jsonObject.query("/catalog/owner/name"));
+        assertNull(jsonObject.optQuery("/catalog/item/price"));
+        assertNull(jsonObject.optQuery("/catalog/item/2"));
+    }
+
     /**
      * Valid XML with comments to JSONObject
      */
@@ -454,6 +584,31 @@ public class XMLTest {
         assertEquals("Expected a matching array", expected, output2);
     }
 
+    /**
+     * Exact XML.toString() output for deeply nested objects, escaped content
+     * and a top level array. Nested elements are written in order with no
+     * separators or whitespace between them.
+     */
+    @Test
+    public void shouldHandleDeepNestingAndEscapingToString() {
+        JSONObject jsonObject = new JSONObject().put("leaf", "x & <y> \"z\" 'w'");
+        StringBuilder open = new StringBuilder();
+        StringBuilder close = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            jsonObject = new JSONObject().put("n", jsonObject);
+            open.append("<n>");
+            close.append("</n>");
+        }
+        String expected = "<root>" + open +
+                "<leaf>x &amp; &lt;y&gt; &quot;z&quot; &apos;w&apos;</leaf>" +
+                close + "</root>";
+        assertEquals(expected, XML.toString(jsonObject, "root"));
+
+        JSONArray jsonArray = new JSONArray().put(1).put("two").put(new JSONObject().put("k", 3));
+        assertEquals("<item>1</item><item>two</item><item><k>3</k></item>",
+                XML.toString(jsonArray, "item"));
+    }
+
     /**
      * Converting a JSON doc containing a named array of nested arrays to
      * JSONObject, then XML.toString() should result in valid XML.
@@ -478,6 +633,26 @@ public class XMLTest {
     }
 
 
+    /**
+     * Records sharing the same keys are written with the same tag names for
+     * every record, while the content of each record is escaped.
+     * Keys that are not legal tag names are covered by
+     * shouldHandleIllegalJSONNodeNames().
+     */
+    @Test
+    public void shouldHandleSharedKeysToString() {
+        JSONArray records = new JSONArray();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            records.put(new JSONObject().put("price", i + " < " + (i + 1)));
+            expected.append("<item><price>").append(i).append(" &lt; ")
+                    .append(i + 1).append("</price></item>");
+        }
+        assertEquals(expected.toString(), XML.toString(records, "item"));
+        assertEquals("repeated output should not change",
+                expected.toString(), XML.toString(records, "item"));
+    }
+
     /**
      * Possible bug: 
      * Illegal node-names must be converted to legal XML-node-names.
@@ -666,6 +841,37 @@ public class XMLTest {
         assertTrue("nothing to test here, see comment on created XML, above", true);
     }
 
+    /**
+     * XML.escape() replaces the five predefined entities and writes control
+     * characters as hex character references. Text with nothing to escape
+     * is returned unchanged, and other non-ASCII characters are kept.
+     */
+    @Test
+    public void testEscape() {
+        assertEquals("plain text", XML.escape("plain text"));
+        assertEquals("", XML.escape(""));
+        assertEquals("a&amp;b&lt;c&gt;d&quot;e&apos;f",
+                XML.escape("a&b<c>d\"e'f"));
+        assertEquals("&#x1;&#x85;caf\u00e9", XML.escape("\u0001\u0085caf\u00e9"));
+    }
+
+    /**
+     * XML.unescape() and the entity handling of XML.toJSONObject() decode
+     * the predefined entities and decimal or hex character references, in
+     * both content and attribute values. Unknown or unterminated entities
+     * are kept as they are.
+     */
+    @Test
+    public void testUnescape() {
+        assertEquals("plain text", XML.unescape("plain text"));
+        assertEquals("&<>\"'AB", XML.unescape("&amp;&lt;&gt;&quot;&apos;&#65;&#x42;"));
+        assertEquals("&unknown;&amp", XML.unescape("&unknown;&amp"));
+
+        JSONObject jsonObject = XML.toJSONObject("<a b=\"&lt;&#x43;\">&amp;&lt;&#65;&#x42;&nbsp;x</a>");
+        assertEquals("<C", jsonObject.query("/a/b"));
+        assertEquals("&<AB&nbsp;x", jsonObject.query("/a/content"));
+    }
+
     /**
      * Convenience method, given an input string and expected result,
      * convert to JSONObject and compare actual to expected result.
@@ -765,4 +971,31 @@ public class XMLTest {
         assertEquals(expectedReverseXml, reverseXml);
     }
 
+    /**
+     * With keepStrings, text and attribute values stay strings, but the
+     * typed JSONObject and JSONArray getters still convert them when they
+     * are read. The stored values are not changed by reading them.
+     */
+    @Test
+    public void testToJsonXMLKeepStringsTypedAccess() {
+        final String originalXml = "<root count=\"3\"><id>01</id><id>2.5</id><flag>True</flag><name>abc</name></root>";
+        final JSONObject root = XML.toJSONObject(originalXml, true).getJSONObject("root");
+
+        assertEquals(3, root.getInt("count"));
+        assertEquals(3L, root.getLong("count"));
+        assertEquals(1, root.getJSONArray("id").getInt(0));
+        assertEquals(2.5, root.getJSONArray("id").getDouble(1), 0.0);
+        assertEquals(true, root.getBoolean("flag"));
+        assertTrue("expected NaN", Double.isNaN(root.optDouble("name")));
+        assertEquals(42, root.optInt("name", 42));
+        try {
+            root.getInt("name");
+            fail("Expected an exception");
+        } catch (JSONException ignored) {}
+
+        assertEquals("3", root.get("count"));
+        assertEquals("01", root.getJSONArray("id").get(0));
+        assertEquals("True", root.get("flag"));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package org.json.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.json.JSONException;
+import org.json.XML;
+import org.json.XMLTokener;
+import org.junit.Test;
+
+/**
+ * Test specific to the {@link org.json.XMLTokener} class, used directly as a
+ * pull parser without going through XML or JSONML.
+ */
+public class XMLTokenerTest {
+
+    /**
+     * Walk a document with nextContent() and nextToken() the same way
+     * XML.toJSONObject() does: start tags with attributes, text, CDATA,
+     * comments, empty elements and end tags.
+     */
+    @Test
+    public void testPullEvents() {
+        final XMLTokener tokener = new XMLTokener(
+                "<a x=\"1\" y='t&amp;'>text &lt; more<![CDATA[<c>]]><!-- c --><b/></a>");
+
+        // start tag with attributes
+        assertEquals(XML.LT, tokener.nextContent());
+        assertEquals("a", tokener.nextToken());
+        assertEquals("x", tokener.nextToken());
+        assertEquals(XML.EQ, tokener.nextToken());
+        assertEquals("1", tokener.nextToken());
+        assertEquals("y", tokener.nextToken());
+        assertEquals(XML.EQ, tokener.nextToken());
+        assertEquals("t&", tokener.nextToken());
+        assertEquals(XML.GT, tokener.nextToken());
+
+        // text is trimmed and unescaped
+        assertEquals("text < more", tokener.nextContent());
+
+        // CDATA section
+        assertEquals(XML.LT, tokener.nextContent());
+        assertEquals(XML.BANG, tokener.nextToken());
+        assertEquals('[', tokener.next());
+        assertEquals("CDATA", tokener.nextToken());
+        assertEquals('[', tokener.next());
+        assertEquals("<c>", tokener.nextCDATA());
+
+        // comment
+        assertEquals(XML.LT, tokener.nextContent());
+        assertEquals(XML.BANG, tokener.nextToken());
+        assertEquals('-', tokener.next());
+        assertEquals('-', tokener.next());
+        tokener.skipPast("-->");
+
+        // empty element
+        assertEquals(XML.LT, tokener.nextContent());
+        assertEquals("b", tokener.nextToken());
+        assertEquals(XML.SLASH, tokener.nextToken());
+        assertEquals(XML.GT, tokener.nextToken());
+
+        // end tag
+        assertEquals(XML.LT, tokener.nextContent());
+        assertEquals(XML.SLASH, tokener.nextToken());
+        assertEquals("a", tokener.nextToken());
+        assertEquals(XML.GT, tokener.nextToken());
+        assertNull("expected the end of the input", tokener.nextContent());
+    }
+
+    /**
+     * Verify that nextCDATA() fails when the section is never closed.
+     */
+    @Test
+    public void testUnclosedCDATA() {
+        final XMLTokener tokener = new XMLTokener("<c> and more");
+        try {
+            tokener.nextCDATA();
+            fail("Expected an exception");
+        } catch (JSONException e) {
+            assertEquals("Unclosed CDATA at 12 [character 13 line 1]", e.getMessage());
+        }
+    }
+}